@@ -0,0 +1,224 @@
+package net.wytrem.spigot.philios;
+
+import net.wytrem.spigot.utils.Service;
+import net.wytrem.spigot.utils.WyPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the friends of joining players and their names on the asynchronous pre-login thread, so
+ * that the join handler only has to read cached data.
+ * <p>
+ * Prefetched friends are consumed when the player joins, while the names are kept until the player
+ * quits, for later friends listings. Prefetches of players who never joined expire.
+ */
+public class FriendsPrefetcher extends Service implements Listener {
+    /**
+     * How long a prefetch waits for its player to join, in milliseconds.
+     */
+    private static final long EXPIRATION = TimeUnit.MINUTES.toMillis(1);
+
+    private final Friendships friendships;
+
+    private final Map<UUID, Prefetched> prefetched = new ConcurrentHashMap<>();
+    // When the current session of each online player started
+    private final Map<UUID, Long> sessions = new ConcurrentHashMap<>();
+    private BukkitTask expirationTask;
+
+    // Statistics
+    private final LongAdder friendsHits = new LongAdder();
+    private final LongAdder friendsMisses = new LongAdder();
+    private final LongAdder namesHits = new LongAdder();
+    private final LongAdder namesMisses = new LongAdder();
+
+    public FriendsPrefetcher(WyPlugin plugin, Friendships friendships) {
+        super(plugin);
+        this.friendships = friendships;
+    }
+
+    // --------------------
+    // Enabling - disabling
+    // --------------------
+
+    @Override
+    protected void onEnable() throws Exception {
+        super.onEnable();
+
+        long period = TimeUnit.MILLISECONDS.toSeconds(EXPIRATION) * 20;
+        this.expirationTask = Bukkit.getScheduler().runTaskTimer(this.getPlugin(), this::expire, period, period);
+    }
+
+    @Override
+    protected void shutdown() throws Exception {
+        super.shutdown();
+
+        if (this.expirationTask != null) {
+            this.expirationTask.cancel();
+            this.expirationTask = null;
+        }
+
+        this.getLogger().info("Prefetched friends hits: " + this.getFriendsHits() + ", misses: " + this.getFriendsMisses()
+                + ". Prefetched names hits: " + this.getNamesHits() + ", misses: " + this.getNamesMisses() + ".");
+        this.prefetched.clear();
+        this.sessions.clear();
+    }
+
+    // --------------------
+    // Events
+    // --------------------
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        UUID player = event.getUniqueId();
+        Collection<UUID> friends = this.friendships.copyFriends(player);
+        Map<UUID, String> names = new HashMap<>();
+
+        for (UUID friend : friends) {
+            String name = Bukkit.getOfflinePlayer(friend).getName();
+            if (name != null) {
+                names.put(friend, name);
+            }
+        }
+
+        this.prefetched.put(player, new Prefetched(System.currentTimeMillis(), friends, names));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            this.prefetched.remove(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID player = event.getPlayer().getUniqueId();
+        Long joinedAt = this.sessions.remove(player);
+
+        // A duplicate login may already have prefetched the next session, which must be kept
+        if (joinedAt != null) {
+            this.prefetched.computeIfPresent(player, (uuid, prefetched) -> prefetched.createdAt <= joinedAt ? null : prefetched);
+        }
+    }
+
+    /**
+     * Forgets the prefetches of players who disconnected before joining.
+     */
+    private void expire() {
+        long expired = System.currentTimeMillis() - EXPIRATION;
+        this.prefetched.entrySet().removeIf(entry -> !this.sessions.containsKey(entry.getKey()) && entry.getValue().createdAt < expired);
+    }
+
+    // ---------------------
+    // Service API
+    // ---------------------
+
+    /**
+     * Consumes the friends prefetched when the given player was logging in. Must be called when the
+     * player joins, as it also marks the start of the player's session.
+     * <p>
+     * Friendships removed since the prefetch are filtered out. None can have been added, as offers
+     * require both players to be online.
+     *
+     * @return the prefetched friends, or nothing if they were not prefetched
+     */
+    public Optional<Collection<UUID>> takeFriends(Player player) {
+        long now = System.currentTimeMillis();
+        this.sessions.put(player.getUniqueId(), now);
+
+        Prefetched prefetched = this.prefetched.get(player.getUniqueId());
+        Collection<UUID> friends = null;
+
+        if (prefetched != null && prefetched.createdAt >= now - EXPIRATION && prefetched.friends != null) {
+            Collection<UUID> current = this.friendships.getFriends(player);
+            friends = prefetched.friends.stream().filter(current::contains).collect(Collectors.toList());
+            prefetched.friends = null;
+        }
+
+        if (friends == null) {
+            this.friendsMisses.increment();
+        }
+        else {
+            this.friendsHits.increment();
+        }
+
+        return Optional.ofNullable(friends);
+    }
+
+    /**
+     * @return the name of the given friend, as prefetched when the given player was logging in
+     */
+    public Optional<String> getName(Player player, UUID friend) {
+        Prefetched prefetched = this.prefetched.get(player.getUniqueId());
+        String name = prefetched == null ? null : prefetched.names.get(friend);
+
+        if (name == null) {
+            this.namesMisses.increment();
+        }
+        else {
+            this.namesHits.increment();
+        }
+
+        return Optional.ofNullable(name);
+    }
+
+    public long getFriendsHits() {
+        return this.friendsHits.sum();
+    }
+
+    public long getFriendsMisses() {
+        return this.friendsMisses.sum();
+    }
+
+    public long getNamesHits() {
+        return this.namesHits.sum();
+    }
+
+    public long getNamesMisses() {
+        return this.namesMisses.sum();
+    }
+
+    @Override
+    public String name() {
+        return "prefetcher";
+    }
+
+    @Override
+    public String version() {
+        return "1.0";
+    }
+
+    private static class Prefetched {
+        private final long createdAt;
+        private final Map<UUID, String> names;
+        // Cleared once consumed by the join
+        private Collection<UUID> friends;
+
+        Prefetched(long createdAt, Collection<UUID> friends, Map<UUID, String> names) {
+            this.createdAt = createdAt;
+            this.friends = friends;
+            this.names = names;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -51,13 +52,16 @@ public class Friendships extends Service {
     protected void shutdown() throws Exception {
         super.shutdown();
 
-        // Save data
-        try {
-            this.saveData();
-        } catch (IOException e) {
-            this.getLogger().log(Level.WARNING, "Could not save friendships.", e);
+        // Login threads may still be reading the friendships
+        synchronized (this) {
+            // Save data
+            try {
+                this.saveData();
+            } catch (IOException e) {
+                this.getLogger().log(Level.WARNING, "Could not save friendships.", e);
+            }
+            this.friendshipTable.clear();
         }
-        this.friendshipTable.clear();
     }
 
     /**
@@ -122,13 +126,23 @@ public class Friendships extends Service {
      * @return All the friends's UUID of the given player
      */
     public Collection<UUID> getFriends(UUID player) {
-        return this.friendshipTable.column(player).keySet();
+        // Friendships are stored both ways, and rows are indexed unlike columns
+        return this.friendshipTable.row(player).keySet();
+    }
+
+    /**
+     * Unlike {@link #getFriends(UUID)}, this may be called from any thread.
+     *
+     * @return a snapshot of all the friends's UUID of the given player
+     */
+    public synchronized Collection<UUID> copyFriends(UUID player) {
+        return new ArrayList<>(this.getFriends(player));
     }
 
     /**
      * Creates a friendship between the two given players. The order does not matter.
      */
-    public void addFriendship(UUID some, UUID other) {
+    public synchronized void addFriendship(UUID some, UUID other) {
         Preconditions.checkNotNull(some);
         Preconditions.checkNotNull(other);
         this.friendshipTable.put(some, other, Boolean.TRUE);
@@ -138,13 +152,35 @@ public class Friendships extends Service {
     /**
      * Removes the friendship between the two given players, if there is one.
      */
-    public void removeFriendship(UUID some, UUID other) {
+    public synchronized void removeFriendship(UUID some, UUID other) {
         Preconditions.checkNotNull(some);
         Preconditions.checkNotNull(other);
         this.friendshipTable.remove(some, other);
         this.friendshipTable.remove(other, some);
     }
 
+    /**
+     * Removes every friendship the given player is part of.
+     *
+     * @return the UUIDs of the players who were friends with the given player
+     */
+    public synchronized Collection<UUID> removeAllFriendships(UUID player) {
+        Preconditions.checkNotNull(player);
+        Collection<UUID> friends = new ArrayList<>(this.getFriends(player));
+        for (UUID friend : friends) {
+            this.friendshipTable.remove(friend, player);
+        }
+        this.friendshipTable.row(player).clear();
+        return friends;
+    }
+
+    /**
+     * @return a snapshot of every player having at least one friend
+     */
+    public synchronized Collection<UUID> getPlayers() {
+        return new ArrayList<>(this.friendshipTable.rowKeySet());
+    }
+
     /**
      * @return whether the given players are friends or not
      */
@@ -0,0 +1,640 @@
+package net.wytrem.spigot.philios;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Standalone entry point computing community metrics over a saved {@code friendships.txt}, without
+ * needing a running server. Only the JDK is used here, as neither Bukkit nor Guava are shaded in the
+ * plugin jar.
+ * <p>
+ * Usage: {@code java -jar philios.jar <friendships.txt> [outputDirectory] [--top N] [--threads N]}
+ * <p>
+ * The file is read three times: to index and rank the players, to size their forward lists, then
+ * to fill them in a compressed adjacency structure. Memory therefore stays around a few dozen bytes
+ * per player plus four bytes per saved line, whatever the size of the file.
+ */
+public class FriendshipsAnalytics {
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    private final ForkJoinPool pool;
+
+    // Graph, in compressed sparse row form
+    private final UuidIndex players = new UuidIndex();
+    private int[] degrees = new int[1024];
+    private int[] forwardDegrees;
+    private int[] offsets;
+    private int[] adjacency;
+
+    // Results
+    private int[] componentSizes;
+    private float[] clustering;
+    private double averageClustering;
+    private double transitivity;
+    private long triangles;
+
+    public FriendshipsAnalytics(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File input = null;
+        File output = new File("analytics");
+        int top = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--top".equals(args[i]) || "--threads".equals(args[i])) {
+                    if (i + 1 == args.length) {
+                        throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+                    }
+
+                    int value;
+                    try {
+                        value = Integer.parseInt(args[i + 1]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid value for " + args[i] + ": " + args[i + 1] + ".");
+                    }
+
+                    if ("--top".equals(args[i])) {
+                        top = value;
+                    }
+                    else {
+                        threads = value;
+                    }
+                    i++;
+                }
+                else if (input == null) {
+                    input = new File(args[i]);
+                }
+                else {
+                    output = new File(args[i]);
+                }
+            }
+
+            if (input == null) {
+                throw new IllegalArgumentException("Missing friendships file.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java -jar philios.jar <friendships.txt> [outputDirectory] [--top N] [--threads N]");
+            System.exit(1);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        FriendshipsAnalytics analytics = new FriendshipsAnalytics(new ForkJoinPool(Math.max(1, threads)));
+        analytics.load(input);
+        System.out.println("Loaded " + analytics.players.size() + " players and " + analytics.edgeCount() + " friendships.");
+        analytics.compute();
+        analytics.write(output, top, System.currentTimeMillis() - start);
+        System.out.println("Results written to " + output.getAbsolutePath() + ".");
+    }
+
+    // --------------------
+    // Loading
+    // --------------------
+
+    /**
+     * Builds the adjacency structure from the given file. Each friendship is stored once, in the
+     * forward list of the lower ranked of its two players, players being ranked by the number of
+     * lines they appear in. Duplicates are removed, so both one-line and two-lines friendships are
+     * supported.
+     */
+    public void load(File file) throws IOException {
+        // First pass: index players and count the lines they appear in, which ranks them
+        this.forEachFriendship(file, (some, other) -> {
+            this.degrees[some]++;
+            this.degrees[other]++;
+        });
+
+        int count = this.players.size();
+        int[] lines = Arrays.copyOf(this.degrees, count);
+
+        // Second pass: count the friendships stored by each player
+        this.forwardDegrees = new int[count];
+        this.forEachFriendship(file, (some, other) -> {
+            if (some >= count || other >= count) {
+                throw new IllegalStateException(file + " has changed while being read.");
+            }
+            this.forwardDegrees[precedes(lines, some, other) ? some : other]++;
+        });
+
+        this.offsets = new int[count + 1];
+        long total = 0;
+
+        for (int i = 0; i < count; i++) {
+            this.offsets[i] = (int) total;
+            total += this.forwardDegrees[i];
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many friendships in " + file + ".");
+            }
+        }
+        this.offsets[count] = (int) total;
+
+        // Third pass: fill the forward lists
+        this.adjacency = new int[(int) total];
+        int[] cursors = Arrays.copyOf(this.offsets, count);
+
+        this.forEachFriendship(file, (some, other) -> {
+            int low = precedes(lines, some, other) ? some : other;
+            int high = low == some ? other : some;
+
+            if (low >= count || high >= count || cursors[low] >= this.offsets[low + 1]) {
+                throw new IllegalStateException(file + " has changed while being read.");
+            }
+            this.adjacency[cursors[low]++] = high;
+        });
+
+        // Sort and deduplicate each list
+        this.parallel(node -> {
+            int from = this.offsets[node];
+            int to = this.offsets[node + 1];
+            Arrays.sort(this.adjacency, from, to);
+
+            int distinct = 0;
+            for (int i = from; i < to; i++) {
+                if (distinct == 0 || this.adjacency[from + distinct - 1] != this.adjacency[i]) {
+                    this.adjacency[from + distinct++] = this.adjacency[i];
+                }
+            }
+            this.forwardDegrees[node] = distinct;
+        });
+
+        // The degree counts the friendships stored by the player and the ones stored by its friends
+        this.degrees = new int[count];
+        for (int node = 0; node < count; node++) {
+            this.degrees[node] += this.forwardDegrees[node];
+            for (int i = this.offsets[node], end = i + this.forwardDegrees[node]; i < end; i++) {
+                this.degrees[this.adjacency[i]]++;
+            }
+        }
+    }
+
+    /**
+     * @return whether the first player ranks before the second one
+     */
+    private static boolean precedes(int[] lines, int some, int other) {
+        return lines[some] < lines[other] || (lines[some] == lines[other] && some < other);
+    }
+
+    private void forEachFriendship(File file, FriendshipConsumer consumer) throws IOException {
+        int separatorLength = Friendships.DELIMITER_IN_SAVED_FILE.length();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            long number = 0;
+
+            while ((line = reader.readLine()) != null) {
+                number++;
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                int separator = line.indexOf(Friendships.DELIMITER_IN_SAVED_FILE);
+                if (separator < 0) {
+                    throw new IOException("Malformed friendship at line " + number + " of " + file + ".");
+                }
+
+                int some;
+                int other;
+
+                try {
+                    some = this.players.idOf(UUID.fromString(line.substring(0, separator)));
+                    other = this.players.idOf(UUID.fromString(line.substring(separator + separatorLength)));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed friendship at line " + number + " of " + file + ".", e);
+                }
+
+                if (this.players.size() > this.degrees.length) {
+                    this.degrees = Arrays.copyOf(this.degrees, Math.max(this.players.size(), this.degrees.length * 2));
+                }
+
+                if (some != other) {
+                    consumer.accept(some, other);
+                }
+            }
+        }
+    }
+
+    // --------------------
+    // Metrics
+    // --------------------
+
+    public void compute() {
+        this.computeComponents();
+        this.computeClustering();
+    }
+
+    /**
+     * Finds the connected components with a lock-free union-find, roots always pointing to the
+     * smallest index so that concurrent unions cannot create cycles.
+     */
+    private void computeComponents() {
+        int count = this.players.size();
+        AtomicIntegerArray parents = new AtomicIntegerArray(count);
+
+        this.parallel(node -> parents.set(node, node));
+        this.parallel(node -> {
+            for (int i = this.offsets[node], end = i + this.forwardDegrees[node]; i < end; i++) {
+                union(parents, node, this.adjacency[i]);
+            }
+        });
+
+        this.componentSizes = new int[count];
+        for (int node = 0; node < count; node++) {
+            this.componentSizes[find(parents, node)]++;
+        }
+    }
+
+    private static int find(AtomicIntegerArray parents, int node) {
+        while (true) {
+            int parent = parents.get(node);
+            if (parent == node) {
+                return node;
+            }
+
+            // Path halving
+            int grandParent = parents.get(parent);
+            if (parent != grandParent) {
+                parents.compareAndSet(node, parent, grandParent);
+            }
+            node = grandParent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray parents, int some, int other) {
+        while (true) {
+            some = find(parents, some);
+            other = find(parents, other);
+
+            if (some == other) {
+                return;
+            }
+
+            int high = Math.max(some, other);
+            int low = Math.min(some, other);
+
+            if (parents.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counts the triangles by intersecting forward lists, giving both the local clustering
+     * coefficients and the global transitivity. As forward lists only hold higher ranked friends,
+     * each triangle is found once, from its lowest ranked player, and popular players have short
+     * forward lists.
+     */
+    private void computeClustering() {
+        int count = this.players.size();
+        AtomicLongArray corners = new AtomicLongArray(count);
+        LongAdder closed = new LongAdder();
+
+        this.parallel(node -> {
+            int from = this.offsets[node];
+            int to = from + this.forwardDegrees[node];
+            long found = 0;
+
+            for (int i = from; i < to; i++) {
+                int friend = this.adjacency[i];
+                int friendFrom = this.offsets[friend];
+                long common = this.creditCommon(corners, from, to, friendFrom, friendFrom + this.forwardDegrees[friend]);
+
+                if (common > 0) {
+                    corners.addAndGet(friend, common);
+                    found += common;
+                }
+            }
+
+            if (found > 0) {
+                corners.addAndGet(node, found);
+                closed.add(found);
+            }
+        });
+
+        LongAdder triples = new LongAdder();
+        DoubleAdder clusteringSum = new DoubleAdder();
+
+        this.clustering = new float[count];
+        this.parallel(node -> {
+            long degree = this.degrees[node];
+
+            if (degree < 2) {
+                return;
+            }
+
+            long nodeTriples = degree * (degree - 1) / 2;
+            this.clustering[node] = (float) ((double) corners.get(node) / nodeTriples);
+
+            triples.add(nodeTriples);
+            clusteringSum.add(this.clustering[node]);
+        });
+
+        this.triangles = closed.sum();
+        this.transitivity = triples.sum() == 0 ? 0 : 3.0 * this.triangles / triples.sum();
+        this.averageClustering = count == 0 ? 0 : clusteringSum.sum() / count;
+    }
+
+    /**
+     * Intersects two sorted forward lists, crediting a triangle to each common friend.
+     *
+     * @return the number of common friends
+     */
+    private long creditCommon(AtomicLongArray corners, int someFrom, int someTo, int otherFrom, int otherTo) {
+        long common = 0;
+
+        while (someFrom < someTo && otherFrom < otherTo) {
+            int some = this.adjacency[someFrom];
+            int other = this.adjacency[otherFrom];
+
+            if (some == other) {
+                corners.incrementAndGet(some);
+                common++;
+                someFrom++;
+                otherFrom++;
+            }
+            else if (some < other) {
+                someFrom++;
+            }
+            else {
+                otherFrom++;
+            }
+        }
+
+        return common;
+    }
+
+    private long edgeCount() {
+        long sum = 0;
+        for (int degree : this.forwardDegrees) {
+            sum += degree;
+        }
+        return sum;
+    }
+
+    // --------------------
+    // Output
+    // --------------------
+
+    /**
+     * Writes {@code summary.json}, {@code degrees.csv}, {@code components.csv} and
+     * {@code connectors.csv} to the given directory.
+     */
+    public void write(File directory, int top, long elapsed) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory + ".");
+        }
+
+        int count = this.players.size();
+        TreeMap<Integer, Integer> degreeDistribution = new TreeMap<>();
+        TreeMap<Integer, Integer> componentDistribution = new TreeMap<>();
+        int maxDegree = 0;
+        int largestComponent = 0;
+        int components = 0;
+
+        for (int node = 0; node < count; node++) {
+            degreeDistribution.merge(this.degrees[node], 1, Integer::sum);
+            maxDegree = Math.max(maxDegree, this.degrees[node]);
+
+            if (this.componentSizes[node] > 0) {
+                componentDistribution.merge(this.componentSizes[node], 1, Integer::sum);
+                largestComponent = Math.max(largestComponent, this.componentSizes[node]);
+                components++;
+            }
+        }
+
+        try (BufferedWriter writer = writer(new File(directory, "degrees.csv"))) {
+            writeLine(writer, "degree,players");
+            for (Map.Entry<Integer, Integer> entry : degreeDistribution.entrySet()) {
+                writeLine(writer, entry.getKey() + "," + entry.getValue());
+            }
+        }
+
+        try (BufferedWriter writer = writer(new File(directory, "components.csv"))) {
+            writeLine(writer, "size,components");
+            for (Map.Entry<Integer, Integer> entry : componentDistribution.entrySet()) {
+                writeLine(writer, entry.getKey() + "," + entry.getValue());
+            }
+        }
+
+        try (BufferedWriter writer = writer(new File(directory, "connectors.csv"))) {
+            writeLine(writer, "player,friends,clustering");
+            for (int node : this.topConnectors(top)) {
+                writeLine(writer, this.players.get(node) + "," + this.degrees[node] + "," + format(this.clustering[node]));
+            }
+        }
+
+        long edges = this.edgeCount();
+
+        try (BufferedWriter writer = writer(new File(directory, "summary.json"))) {
+            writeLine(writer, "{");
+            writeLine(writer, "  \"players\": " + count + ",");
+            writeLine(writer, "  \"friendships\": " + edges + ",");
+            writeLine(writer, "  \"averageDegree\": " + format(count == 0 ? 0 : 2.0 * edges / count) + ",");
+            writeLine(writer, "  \"maxDegree\": " + maxDegree + ",");
+            writeLine(writer, "  \"components\": " + components + ",");
+            writeLine(writer, "  \"largestComponent\": " + largestComponent + ",");
+            writeLine(writer, "  \"triangles\": " + this.triangles + ",");
+            writeLine(writer, "  \"averageClustering\": " + format(this.averageClustering) + ",");
+            writeLine(writer, "  \"transitivity\": " + format(this.transitivity) + ",");
+            writeLine(writer, "  \"elapsedMillis\": " + elapsed);
+            writeLine(writer, "}");
+        }
+    }
+
+    /**
+     * @return the players having the most friends, best first
+     */
+    private int[] topConnectors(int top) {
+        PriorityQueue<Integer> queue = new PriorityQueue<>((some, other) -> Integer.compare(this.degrees[some], this.degrees[other]));
+
+        for (int node = 0; node < this.players.size() && top > 0; node++) {
+            if (queue.size() < top) {
+                queue.add(node);
+            }
+            else if (this.degrees[node] > this.degrees[queue.peek()]) {
+                queue.poll();
+                queue.add(node);
+            }
+        }
+
+        int[] result = new int[queue.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = queue.poll();
+        }
+        return result;
+    }
+
+    private static BufferedWriter writer(File file) throws IOException {
+        return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeLine(BufferedWriter writer, String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    // --------------------
+    // Fork-join
+    // --------------------
+
+    private void parallel(IntConsumer body) {
+        this.pool.invoke(new RangeTask(this.offsets, 0, this.players.size(), body));
+    }
+
+    /**
+     * Applies a function to a range of players, splitting it in halves of similar adjacency volume
+     * until small enough, so that popular players do not end up in a single oversized task.
+     */
+    private static class RangeTask extends RecursiveAction {
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        RangeTask(int[] offsets, int from, int to, IntConsumer body) {
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        /**
+         * @return the amount of work of the given range, counting each player and each friendship
+         */
+        private long volume(int from, int to) {
+            return (long) this.offsets[to] - this.offsets[from] + (to - from);
+        }
+
+        @Override
+        protected void compute() {
+            long volume = this.volume(this.from, this.to);
+
+            if (volume <= SEQUENTIAL_THRESHOLD || this.to - this.from == 1) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.body.accept(i);
+                }
+            }
+            else {
+                // Smallest split point holding at least half of the volume
+                int low = this.from + 1;
+                int high = this.to - 1;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (this.volume(this.from, middle) * 2 < volume) {
+                        low = middle + 1;
+                    }
+                    else {
+                        high = middle;
+                    }
+                }
+                invokeAll(new RangeTask(this.offsets, this.from, low, this.body), new RangeTask(this.offsets, low, this.to, this.body));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface FriendshipConsumer {
+        void accept(int some, int other);
+    }
+
+    /**
+     * Maps player UUIDs to dense indices, using primitive arrays rather than boxed map entries.
+     */
+    private static class UuidIndex {
+        private long[] mostSignificantBits = new long[1024];
+        private long[] leastSignificantBits = new long[1024];
+        // Index + 1 of the player in each slot, 0 meaning the slot is empty
+        private int[] slots = new int[2048];
+        private int size;
+
+        int size() {
+            return this.size;
+        }
+
+        UUID get(int index) {
+            return new UUID(this.mostSignificantBits[index], this.leastSignificantBits[index]);
+        }
+
+        /**
+         * @return the index of the given player, indexing it first if needed
+         */
+        int idOf(UUID uuid) {
+            long most = uuid.getMostSignificantBits();
+            long least = uuid.getLeastSignificantBits();
+            int mask = this.slots.length - 1;
+            int slot = hash(most, least) & mask;
+
+            while (this.slots[slot] != 0) {
+                int index = this.slots[slot] - 1;
+                if (this.mostSignificantBits[index] == most && this.leastSignificantBits[index] == least) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (this.size == this.mostSignificantBits.length) {
+                this.mostSignificantBits = Arrays.copyOf(this.mostSignificantBits, this.size * 2);
+                this.leastSignificantBits = Arrays.copyOf(this.leastSignificantBits, this.size * 2);
+            }
+
+            int index = this.size++;
+            this.mostSignificantBits[index] = most;
+            this.leastSignificantBits[index] = least;
+            this.slots[slot] = index + 1;
+
+            // Keep the load factor under one half
+            if (this.size * 2 > this.slots.length) {
+                this.rehash();
+            }
+
+            return index;
+        }
+
+        private void rehash() {
+            this.slots = new int[this.slots.length * 2];
+            int mask = this.slots.length - 1;
+
+            for (int index = 0; index < this.size; index++) {
+                int slot = hash(this.mostSignificantBits[index], this.leastSignificantBits[index]) & mask;
+                while (this.slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                this.slots[slot] = index + 1;
+            }
+        }
+
+        private static int hash(long most, long least) {
+            long hash = most ^ least;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return (int) hash;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package net.wytrem.spigot.philios;
+
+import net.wytrem.spigot.utils.Service;
+import net.wytrem.spigot.utils.WyPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Drops the friendships of players who have not been seen for a configurable amount of days.
+ * <p>
+ * Finding inactive players requires reading their data from disk, which is done by an asynchronous
+ * task. The friendships of the players it finds are then removed on the main thread in small
+ * slices, one every few ticks, each slice being bounded by a time budget.
+ */
+public class InactivePlayersSweeper extends Service implements Listener {
+    private final Friendships friendships;
+
+    // Config
+    private boolean enabled;
+    private boolean dryRun;
+    private long retentionMillis;
+    private long sliceBudgetNanos;
+    private long slicePeriod;
+    private long passIntervalMillis;
+
+    // Current pass
+    private BukkitTask task;
+    private final Queue<UUID> inactive = new ConcurrentLinkedQueue<>();
+    private volatile boolean scanning;
+    private volatile boolean cancelled;
+    private volatile boolean passRunning;
+    private long nextPassAt;
+    private int sweptPlayers;
+    private int sweptFriendships;
+
+    // Players who logged in since the pass started
+    private final Set<UUID> seen = ConcurrentHashMap.newKeySet();
+
+    // Dry run
+    private final Set<UUID> sweptThisPass = new HashSet<>();
+    private final Set<UUID> reported = new HashSet<>();
+
+    public InactivePlayersSweeper(WyPlugin plugin, Friendships friendships) {
+        super(plugin);
+        this.friendships = friendships;
+    }
+
+    // --------------------
+    // Enabling - disabling
+    // --------------------
+
+    @Override
+    protected void onEnable() throws Exception {
+        super.onEnable();
+
+        // Load config
+        ConfigurationSection config = this.getPlugin().getConfig().getConfigurationSection("sweeper");
+
+        if (config == null) {
+            this.enabled = false;
+            return;
+        }
+
+        this.enabled = config.getBoolean("enabled", false);
+        this.dryRun = config.getBoolean("dryRun", true);
+        this.retentionMillis = TimeUnit.DAYS.toMillis(Math.max(1, config.getLong("retentionDays", 365)));
+        this.sliceBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getLong("sliceBudget", 2)));
+        this.slicePeriod = Math.max(1, config.getLong("slicePeriod", 20));
+        this.passIntervalMillis = TimeUnit.MINUTES.toMillis(Math.max(1, config.getLong("passInterval", 60)));
+
+        if (this.enabled) {
+            this.cancelled = false;
+            this.nextPassAt = System.currentTimeMillis();
+            this.task = Bukkit.getScheduler().runTaskTimer(this.getPlugin(), this::sweepSlice, this.slicePeriod, this.slicePeriod);
+            this.getLogger().info("Sweeping friendships of players inactive for more than " + TimeUnit.MILLISECONDS.toDays(this.retentionMillis) + " days" + (this.dryRun ? " (dry run)." : "."));
+        }
+    }
+
+    @Override
+    protected void shutdown() throws Exception {
+        super.shutdown();
+
+        this.cancelled = true;
+
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+
+        this.inactive.clear();
+        this.sweptThisPass.clear();
+        this.seen.clear();
+        this.passRunning = false;
+    }
+
+    // --------------------
+    // Events
+    // --------------------
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (this.passRunning) {
+            this.seen.add(event.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (this.passRunning) {
+            this.seen.add(event.getPlayer().getUniqueId());
+        }
+    }
+
+    // ---------------------
+    // Sweeping
+    // ---------------------
+
+    /**
+     * Removes the friendships of as many inactive players as the slice budget allows, starting a new
+     * pass when the previous one is over and the pass interval has elapsed.
+     */
+    private void sweepSlice() {
+        long now = System.currentTimeMillis();
+
+        if (!this.passRunning) {
+            if (now < this.nextPassAt) {
+                return;
+            }
+            this.startPass(now);
+        }
+
+        long deadline = System.nanoTime() + this.sliceBudgetNanos;
+
+        while (!this.inactive.isEmpty() && System.nanoTime() < deadline) {
+            this.sweep(this.inactive.poll());
+        }
+
+        if (!this.scanning && this.inactive.isEmpty()) {
+            this.finishPass();
+        }
+    }
+
+    private void startPass(long now) {
+        long cutoff = now - this.retentionMillis;
+
+        this.passRunning = true;
+        this.scanning = true;
+        this.nextPassAt = now + this.passIntervalMillis;
+        this.sweptPlayers = 0;
+        this.sweptFriendships = 0;
+        this.sweptThisPass.clear();
+        this.seen.clear();
+
+        Bukkit.getScheduler().runTaskAsynchronously(this.getPlugin(), () -> this.scan(cutoff));
+    }
+
+    private void finishPass() {
+        this.passRunning = false;
+        this.seen.clear();
+
+        if (this.sweptPlayers > 0) {
+            this.getLogger().info((this.dryRun ? "Would have removed " : "Removed ") + this.sweptFriendships + " friendships of " + this.sweptPlayers + " inactive players.");
+        }
+    }
+
+    /**
+     * Looks for inactive players, off the main thread.
+     */
+    private void scan(long cutoff) {
+        try {
+            for (UUID uuid : this.friendships.getPlayers()) {
+                if (this.cancelled) {
+                    return;
+                }
+
+                if (this.isInactive(uuid, cutoff)) {
+                    this.inactive.add(uuid);
+                }
+            }
+        } finally {
+            this.scanning = false;
+        }
+    }
+
+    private void sweep(UUID uuid) {
+        // The player may have logged in since the scan, even if not online anymore
+        if (this.seen.contains(uuid) || Bukkit.getPlayer(uuid) != null) {
+            return;
+        }
+
+        Collection<UUID> removed;
+
+        if (this.dryRun) {
+            // Friendships between two inactive players would only be removed once
+            removed = new ArrayList<>();
+            for (UUID friend : this.friendships.getFriends(uuid)) {
+                if (!this.sweptThisPass.contains(friend)) {
+                    removed.add(friend);
+                }
+            }
+            this.sweptThisPass.add(uuid);
+        }
+        else {
+            removed = this.friendships.removeAllFriendships(uuid);
+        }
+
+        if (!removed.isEmpty()) {
+            this.sweptPlayers++;
+            this.sweptFriendships += removed.size();
+
+            // Dry runs find the same players at each pass, only the summary is repeated
+            if (!this.dryRun || this.reported.add(uuid)) {
+                this.getLogger().info((this.dryRun ? "Would remove " : "Removed ") + removed.size() + " friendships of inactive player " + uuid + ": "
+                        + removed.stream().map(UUID::toString).collect(Collectors.joining(", ")) + ".");
+            }
+        }
+    }
+
+    /**
+     * @return whether the given player was last seen before the cutoff. Players that the server has
+     * no record of are kept, as their absence may only mean the player data was wiped.
+     */
+    private boolean isInactive(UUID uuid, long cutoff) {
+        OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+
+        if (player.isOnline()) {
+            return false;
+        }
+
+        long lastPlayed = player.getLastPlayed();
+        return lastPlayed > 0 && lastPlayed < cutoff;
+    }
+
+    @Override
+    public String name() {
+        return "sweeper";
+    }
+
+    @Override
+    public String version() {
+        return "1.0";
+    }
+}
@@ -28,6 +28,8 @@ public class Philios extends WyPlugin implements Listener {
     public Texts texts;
     public FriendOffersManager offers;
     private Friendships friendships;
+    private InactivePlayersSweeper sweeper;
+    private FriendsPrefetcher prefetcher;
 
     // Commands
     private Command removeCommand;
@@ -68,6 +70,16 @@ public class Philios extends WyPlugin implements Listener {
         this.friendships = new Friendships(this);
         this.enableService(this.friendships);
 
+        // Inactive players sweeper
+        this.sweeper = new InactivePlayersSweeper(this, this.friendships);
+        this.enableService(this.sweeper);
+        this.registerEvents(this.sweeper);
+
+        // Friends prefetching on login
+        this.prefetcher = new FriendsPrefetcher(this, this.friendships);
+        this.enableService(this.prefetcher);
+        this.registerEvents(this.prefetcher);
+
         // Load config
         this.sendOnPlayerJoin = this.getConfig().getBoolean("sendOnPlayerJoin", true);
     }
@@ -76,10 +88,17 @@ public class Philios extends WyPlugin implements Listener {
         return friendships;
     }
 
+    public FriendsPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        Optional<Collection<UUID>> prefetched = this.prefetcher.takeFriends(player);
+
         if (this.sendOnPlayerJoin) {
-            this.sendOnlineFriends(event.getPlayer());
+            this.sendOnlineFriends(player, prefetched.orElseGet(() -> this.friendships.getFriends(player)));
         }
     }
 
@@ -96,7 +115,11 @@ public class Philios extends WyPlugin implements Listener {
     }
 
     protected void sendOnlineFriends(Player player) {
-        Collection<UUID> onlineFriends = this.friendships.getFriends(player).stream().filter(this::isOnline).collect(Collectors.toList());
+        this.sendOnlineFriends(player, this.friendships.getFriends(player));
+    }
+
+    protected void sendOnlineFriends(Player player, Collection<UUID> friends) {
+        Collection<UUID> onlineFriends = friends.stream().filter(this::isOnline).collect(Collectors.toList());
 
         if (onlineFriends.isEmpty()) {
             this.texts.youHaveNoOnlineFriends.send(player);
@@ -122,7 +145,7 @@ public class Philios extends WyPlugin implements Listener {
             this.texts.offlineFriends.send(player);
 
             BaseComponent[] message = offlineFriends.stream()
-                    .map(friend -> this.buildFriend(getDisplayName(friend), friend))
+                    .map(friend -> this.buildFriend(this.prefetcher.getName(player, friend).orElseGet(() -> getDisplayName(friend)), friend))
                     .collect(ChatComponentJoiner.joining(", ", null, "."));
 
             player.spigot().sendMessage(message);